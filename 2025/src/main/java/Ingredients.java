@@ -1,8 +1,25 @@
-import java.io.InputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
 
 /**
  * --- Day 5: Cafeteria --- As the forklifts break through the wall, the Elves are delighted to
@@ -126,31 +143,739 @@ public class Ingredients {
     return validIngredients;
   }
 
-  public static void main(String[] args) {
-    List<Long[]> rangesList = new ArrayList<>();
-    List<Long> ingredientsList = new ArrayList<>();
+  // Fresh ranges merged into disjoint, ascending [starts[i], ends[i]] pairs. Built once and shared
+  // by both parts.
+  static class MergedRanges {
+    final long[] starts;
+    final long[] ends;
 
-    ClassLoader loader = Thread.currentThread().getContextClassLoader();
-    InputStream is = loader.getResourceAsStream("ingredients.txt");
-    Scanner scanner = new Scanner(is);
-    boolean rangesComplete = false;
-    while (scanner.hasNextLine()) {
-
-      String line = scanner.nextLine().trim();
-      if (line.isEmpty()) {
-        rangesComplete = true;
-        continue;
-      }
-      if (rangesComplete) {
-        ingredientsList.add(Long.parseLong(line));
+    public MergedRanges(long[] starts, long[] ends) {
+      this.starts = starts;
+      this.ends = ends;
+    }
+
+    public int size() {
+      return starts.length;
+    }
+
+    // Part 2: how many IDs the ranges cover
+    public long covered() {
+      long covered = 0;
+      for (int i = 0; i < starts.length; i++) {
+        covered += (ends[i] - starts[i]) + 1;
+      }
+      return covered;
+    }
+
+    // Part 1 for ascending ids, the same two-pointer walk as getValidIngredients
+    public long countFresh(long[] sortedIds) {
+      long validIngredients = 0;
+      int igrIdx = 0;
+      int rngIdx = 0;
+      while (igrIdx < sortedIds.length && rngIdx < starts.length) {
+        long ingredient = sortedIds[igrIdx];
+        if (ingredient < starts[rngIdx]) {
+          igrIdx++;
+        } else if (ingredient > ends[rngIdx]) {
+          rngIdx++;
+        } else {
+          validIngredients++;
+          igrIdx++;
+        }
+      }
+      return validIngredients;
+    }
+  }
+
+  // Immutable membership index over merged ranges for ad-hoc lookups from any number of threads.
+  // The range starts are laid out in Eytzinger (BFS) order, so the first levels of every search
+  // share the same few cache lines, and the descent k = 2k + (keys[k] <= id) has no
+  // data-dependent branch. Where the descent lands is the first start greater than id;
+  // prevEnd[k] holds the end of the range just before it, and since the ranges are disjoint the
+  // id is fresh exactly when it does not pass that end. Slot 0 stands for "no start is greater".
+  static class FreshLookup {
+    private final long[] keys;
+    private final long[] prevEnd;
+    private final long firstStart;
+
+    public FreshLookup(MergedRanges ranges) {
+      int n = ranges.size();
+      keys = new long[n + 1];
+      prevEnd = new long[n + 1];
+      firstStart = n == 0 ? Long.MAX_VALUE : ranges.starts[0];
+      if (n > 0) {
+        prevEnd[0] = ranges.ends[n - 1];
+      }
+      fill(ranges, 1, 0);
+    }
+
+    // In-order walk of the implicit tree rooted at k, handing out sorted index next.
+    // Returns the next unused index.
+    private int fill(MergedRanges ranges, int k, int next) {
+      if (k >= keys.length) {
+        return next;
+      }
+      next = fill(ranges, 2 * k, next);
+      keys[k] = ranges.starts[next];
+      prevEnd[k] = next > 0 ? ranges.ends[next - 1] : Long.MIN_VALUE;
+      next++;
+      return fill(ranges, 2 * k + 1, next);
+    }
+
+    public boolean isFresh(long id) {
+      if (id < firstStart) {
+        return false;
+      }
+      int n = keys.length - 1;
+      int k = 1;
+      while (k <= n) {
+        k = 2 * k + (keys[k] <= id ? 1 : 0);
+      }
+      // drop the trailing right turns and the last left turn to get back to the answer node
+      k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+      return id <= prevEnd[k];
+    }
+
+    // Part 1 for ids in any order
+    public long countFresh(long[] ids) {
+      long fresh = 0;
+      for (long id : ids) {
+        if (isFresh(id)) {
+          fresh++;
+        }
+      }
+      return fresh;
+    }
+  }
+
+  // Mutable multiset of fresh ranges backed by a dynamic segment tree over every long ID. A node
+  // counts how many added ranges cover all of it (cover) and how many of its IDs are covered at
+  // all (covered); add and remove touch O(log U) = O(64) nodes, covered() is the root's count
+  // in O(1) and a part 1 membership test is one walk down the tree.
+  //
+  // Ranges are counted per exact (start, end): a delivery and its later expiry cancel out, and an
+  // ID stays fresh while any other range still covers it. remove() of a range that was never
+  // added is a no-op. Nodes are created on demand and recycled once nothing under them is
+  // covered, so memory follows the live ranges rather than the update history.
+  static class FreshRangeSet {
+    // node 0 is "no child"; node 1 is the root for [Long.MIN_VALUE, Long.MAX_VALUE]
+    private int[] left = new int[1024];
+    private int[] right = new int[1024];
+    private int[] cover = new int[1024];
+    private long[] covered = new long[1024];
+    private int nodes = 2;
+    private int freeList;
+    private final Map<Long, Map<Long, Integer>> counts = new HashMap<>();
+    private int rangeCount;
+
+    public void add(long start, long end) {
+      if (start > end) {
+        return;
+      }
+      counts.computeIfAbsent(start, key -> new HashMap<>()).merge(end, 1, Integer::sum);
+      rangeCount++;
+      update(1, Long.MIN_VALUE, Long.MAX_VALUE, start, end, 1);
+    }
+
+    // Removes one copy of [start, end]; false if no such range was added
+    public boolean remove(long start, long end) {
+      Map<Long, Integer> ends = counts.get(start);
+      Integer count = ends == null ? null : ends.get(end);
+      if (count == null) {
+        return false;
+      }
+      if (count == 1) {
+        ends.remove(end);
+        if (ends.isEmpty()) {
+          counts.remove(start);
+        }
+      } else {
+        ends.put(end, count - 1);
+      }
+      rangeCount--;
+      update(1, Long.MIN_VALUE, Long.MAX_VALUE, start, end, -1);
+      return true;
+    }
+
+    public boolean isFresh(long id) {
+      int node = 1;
+      long lo = Long.MIN_VALUE;
+      long hi = Long.MAX_VALUE;
+      while (node != 0) {
+        if (cover[node] > 0) {
+          return true;
+        }
+        long mid = mid(lo, hi);
+        if (id <= mid) {
+          node = left[node];
+          hi = mid;
+        } else {
+          node = right[node];
+          lo = mid + 1;
+        }
+      }
+      return false;
+    }
+
+    // Wraps like the other long sums if every one of the 2^64 IDs is covered
+    public long covered() {
+      return covered[1];
+    }
+
+    // Live ranges, counting each copy of a range added more than once
+    public int rangeCount() {
+      return rangeCount;
+    }
+
+    private void update(int node, long lo, long hi, long start, long end, int delta) {
+      if (start <= lo && hi <= end) {
+        cover[node] += delta;
+      } else {
+        long mid = mid(lo, hi);
+        if (start <= mid) {
+          if (left[node] == 0) {
+            // newNode() may reallocate left, so the child must be stored after it returns
+            int child = newNode();
+            left[node] = child;
+          }
+          update(left[node], lo, mid, start, end, delta);
+          // nothing below an uncovered node has a positive cover count, so it can be recycled
+          if (covered[left[node]] == 0) {
+            release(left[node]);
+            left[node] = 0;
+          }
+        }
+        if (end > mid) {
+          if (right[node] == 0) {
+            int child = newNode();
+            right[node] = child;
+          }
+          update(right[node], mid + 1, hi, start, end, delta);
+          if (covered[right[node]] == 0) {
+            release(right[node]);
+            right[node] = 0;
+          }
+        }
+      }
+      if (cover[node] > 0) {
+        covered[node] = (hi - lo) + 1;
       } else {
-        String[] ingredients = line.split("-");
-        rangesList.add(new Long[] {Long.parseLong(ingredients[0]), Long.parseLong(ingredients[1])});
+        covered[node] = covered[left[node]] + covered[right[node]];
+      }
+    }
+
+    private int newNode() {
+      int node;
+      if (freeList != 0) {
+        node = freeList;
+        freeList = left[node];
+        left[node] = 0;
+      } else {
+        if (nodes == left.length) {
+          left = Arrays.copyOf(left, nodes << 1);
+          right = Arrays.copyOf(right, nodes << 1);
+          cover = Arrays.copyOf(cover, nodes << 1);
+          covered = Arrays.copyOf(covered, nodes << 1);
+        }
+        node = nodes++;
+      }
+      return node;
+    }
+
+    private void release(int node) {
+      if (left[node] != 0) {
+        release(left[node]);
+      }
+      if (right[node] != 0) {
+        release(right[node]);
+      }
+      right[node] = 0;
+      cover[node] = 0;
+      covered[node] = 0;
+      left[node] = freeList;
+      freeList = node;
+    }
+
+    // Midpoint that cannot overflow, rounding towards Long.MIN_VALUE
+    private static long mid(long lo, long hi) {
+      return lo + ((hi - lo) >>> 1);
+    }
+  }
+
+  // Ranges as parallel long[] starts/ends instead of boxed Long[] pairs. merge() sorts by start
+  // with an LSD radix sort (16 bits per pass, ends carried along) and merges in a single pass.
+  static class IntervalStore {
+    private long[] starts = new long[1024];
+    private long[] ends = new long[1024];
+    private int size;
+
+    public void add(long start, long end) {
+      if (size == starts.length) {
+        starts = Arrays.copyOf(starts, size << 1);
+        ends = Arrays.copyOf(ends, size << 1);
+      }
+      starts[size] = start;
+      ends[size] = end;
+      size++;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public MergedRanges merge() {
+      radixSortByStart();
+      long[] mergedStarts = new long[size];
+      long[] mergedEnds = new long[size];
+      int merged = 0;
+      for (int i = 0; i < size; i++) {
+        // same rule as getValidIngredients2: merge when the previous range reaches this start
+        if (merged > 0 && mergedEnds[merged - 1] >= starts[i]) {
+          mergedEnds[merged - 1] = Math.max(mergedEnds[merged - 1], ends[i]);
+        } else {
+          mergedStarts[merged] = starts[i];
+          mergedEnds[merged] = ends[i];
+          merged++;
+        }
+      }
+      return new MergedRanges(
+          Arrays.copyOf(mergedStarts, merged), Arrays.copyOf(mergedEnds, merged));
+    }
+
+    // Stable LSD radix sort on the starts, flipping the sign bit so negative values order first.
+    // A pass is skipped when every key has the same digit, which is common for the high digits.
+    private void radixSortByStart() {
+      long[] keys = starts;
+      long[] values = ends;
+      long[] keyBuffer = new long[size];
+      long[] valueBuffer = new long[size];
+      int[] counts = new int[1 << 16];
+      for (int shift = 0; shift < 64; shift += 16) {
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < size; i++) {
+          counts[digit(keys[i], shift)]++;
+        }
+        if (size == 0 || counts[digit(keys[0], shift)] == size) {
+          continue;
+        }
+        int offset = 0;
+        for (int d = 0; d < counts.length; d++) {
+          int count = counts[d];
+          counts[d] = offset;
+          offset += count;
+        }
+        for (int i = 0; i < size; i++) {
+          int target = counts[digit(keys[i], shift)]++;
+          keyBuffer[target] = keys[i];
+          valueBuffer[target] = values[i];
+        }
+        long[] swap = keys;
+        keys = keyBuffer;
+        keyBuffer = swap;
+        swap = values;
+        values = valueBuffer;
+        valueBuffer = swap;
       }
+      starts = keys;
+      ends = values;
     }
-    long ingredientsSum = getValidIngredients(rangesList, ingredientsList);
-    long freshIngredients = getValidIngredients2(rangesList);
+
+    private static int digit(long key, int shift) {
+      return (int) (((key ^ Long.MIN_VALUE) >>> shift) & 0xffff);
+    }
+  }
+
+  // Parallel version of the sort-and-merge in getValidIngredients2 for very large range files.
+  // The file is cut into newline-aligned regions (see MappedRegions.lineAlignedCuts) that are
+  // parsed in parallel; every "a-b" line is a range and lines without a dash (the ingredient IDs)
+  // are skipped, so no region needs to know where the blank line is. Each worker maps its region
+  // one window at a time, with the line in progress carried across windows.
+  static MergedRanges parallelMerge(Path path) throws IOException {
+    List<IntervalStore> parsed = new ArrayList<>();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long[] cuts = MappedRegions.lineAlignedCuts(channel);
+      List<Callable<IntervalStore>> workers = new ArrayList<>();
+      for (int i = 0; i + 1 < cuts.length; i++) {
+        long from = cuts[i];
+        long to = cuts[i + 1];
+        if (from >= to) {
+          continue;
+        }
+        workers.add(
+            () -> {
+              RangeParser parser = new RangeParser();
+              for (long offset = from; offset < to; offset += MappedRegions.MAX_WINDOW) {
+                parser.feed(MappedRegions.mapWindow(channel, offset, to));
+              }
+              return parser.finish();
+            });
+      }
+      for (Future<IntervalStore> result : ForkJoinPool.commonPool().invokeAll(workers)) {
+        parsed.add(result.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+
+    int total = 0;
+    for (IntervalStore store : parsed) {
+      total += store.size;
+    }
+    long[] starts = new long[total];
+    long[] ends = new long[total];
+    int offset = 0;
+    for (IntervalStore store : parsed) {
+      System.arraycopy(store.starts, 0, starts, offset, store.size);
+      System.arraycopy(store.ends, 0, ends, offset, store.size);
+      offset += store.size;
+    }
+    return parallelMerge(starts, ends);
+  }
+
+  // "a-b" lines of one region, fed one mapped window at a time
+  private static class RangeParser {
+    private final IntervalStore store = new IntervalStore();
+    private long value;
+    private long first;
+    private boolean dash;
+
+    void feed(ByteBuffer buffer) {
+      while (buffer.hasRemaining()) {
+        byte b = buffer.get();
+        if (b >= '0' && b <= '9') {
+          value = value * 10 + (b - '0');
+        } else if (b == '-') {
+          first = value;
+          value = 0;
+          dash = true;
+        } else if (b == '\n') {
+          if (dash) {
+            store.add(first, value);
+          }
+          value = 0;
+          dash = false;
+        }
+      }
+    }
+
+    IntervalStore finish() {
+      if (dash) {
+        store.add(first, value);
+      }
+      return store;
+    }
+  }
+
+  // Sorts the starts and the ends independently with Arrays.parallelSort. For a union that is as
+  // good as sorting the pairs: with both sorted, a merged range closes after index j exactly when
+  // ends[j] < starts[j + 1], i.e. the j + 1 earliest ranges all end before the next one starts.
+  // That test only looks at neighbours, so chunks of the sorted arrays are merged in parallel and
+  // a chunk's last range is stitched onto the next chunk's first when they still overlap.
+  // Empty ranges (start > end) would break that pairing, so they are dropped first by compacting
+  // the arrays, which are then sorted in place.
+  static MergedRanges parallelMerge(long[] starts, long[] ends) {
+    int kept = 0;
+    for (int i = 0; i < starts.length; i++) {
+      if (starts[i] <= ends[i]) {
+        starts[kept] = starts[i];
+        ends[kept] = ends[i];
+        kept++;
+      }
+    }
+    int n = kept;
+    Arrays.parallelSort(starts, 0, n);
+    Arrays.parallelSort(ends, 0, n);
+    int chunks = Math.max(1, Math.min(n / 4096, 4 * Runtime.getRuntime().availableProcessors()));
+    long[][] chunkStarts = new long[chunks][];
+    long[][] chunkEnds = new long[chunks][];
+    IntStream.range(0, chunks)
+        .parallel()
+        .forEach(
+            c -> {
+              int from = (int) ((long) n * c / chunks);
+              int to = (int) ((long) n * (c + 1) / chunks);
+              long[] mergedStarts = new long[to - from];
+              long[] mergedEnds = new long[to - from];
+              int merged = 0;
+              for (int i = from; i < to; i++) {
+                long start = starts[i];
+                // stop at the chunk's last index; stitching decides whether it continues
+                while (i + 1 < to && ends[i] >= starts[i + 1]) {
+                  i++;
+                }
+                mergedStarts[merged] = start;
+                mergedEnds[merged] = ends[i];
+                merged++;
+              }
+              chunkStarts[c] = Arrays.copyOf(mergedStarts, merged);
+              chunkEnds[c] = Arrays.copyOf(mergedEnds, merged);
+            });
+
+    long[] mergedStarts = new long[n];
+    long[] mergedEnds = new long[n];
+    int merged = 0;
+    for (int c = 0; c < chunks; c++) {
+      for (int i = 0; i < chunkStarts[c].length; i++) {
+        if (merged > 0 && i == 0 && mergedEnds[merged - 1] >= chunkStarts[c][0]) {
+          // with independently sorted ends, the later end is always the larger one
+          mergedEnds[merged - 1] = chunkEnds[c][0];
+        } else {
+          mergedStarts[merged] = chunkStarts[c][i];
+          mergedEnds[merged] = chunkEnds[c][i];
+          merged++;
+        }
+      }
+    }
+    return new MergedRanges(Arrays.copyOf(mergedStarts, merged), Arrays.copyOf(mergedEnds, merged));
+  }
+
+  // Both answers in one read of the database without ever holding the IDs. The ranges before the
+  // blank line go into an IntervalStore; at the blank line they are merged into a FreshLookup and
+  // every ID after it is parsed from the buffer and checked on the spot. Returns
+  // {fresh IDs, covered IDs}.
+  static long[] streamFreshCount(Path path) throws IOException {
+    IntervalStore store = new IntervalStore();
+    MergedRanges merged = null;
+    FreshLookup lookup = null;
+    long fresh = 0;
+    long value = 0;
+    long first = 0;
+    boolean dash = false;
+    boolean digits = false;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          byte b = buffer.get();
+          if (b >= '0' && b <= '9') {
+            value = value * 10 + (b - '0');
+            digits = true;
+          } else if (b == '-') {
+            first = value;
+            value = 0;
+            dash = true;
+          } else if (b == '\n') {
+            if (lookup != null) {
+              if (digits && lookup.isFresh(value)) {
+                fresh++;
+              }
+            } else if (dash) {
+              store.add(first, value);
+            } else if (!digits) {
+              // the blank line: every range is known now
+              merged = store.merge();
+              lookup = new FreshLookup(merged);
+            }
+            value = 0;
+            dash = false;
+            digits = false;
+          }
+        }
+        buffer.clear();
+      }
+    }
+    // a last line without a trailing newline
+    if (lookup == null) {
+      if (dash) {
+        store.add(first, value);
+      }
+      merged = store.merge();
+    } else if (digits && lookup.isFresh(value)) {
+      fresh++;
+    }
+    return new long[] {fresh, merged.covered()};
+  }
+
+  // Merged ranges persisted as a binary file and memory-mapped on open, so later runs skip parsing
+  // and merging. Layout, all big-endian longs:
+  //   magic, version, range count, covered IDs, CRC32 of the pairs, then start/end pairs ascending
+  // Opening only reads the header; a lookup is a binary search that touches O(log n) pages and
+  // covered() comes from the header. verify() checks the CRC when the caller wants to pay for a
+  // full read.
+  static class MappedRangeIndex {
+    private static final long MAGIC = 0x494e4752414e4745L; // "INGRANGE"
+    private static final long VERSION = 1;
+    private static final int HEADER_LONGS = 5;
+    // open() maps the whole file in one go, which FileChannel.map caps at Integer.MAX_VALUE bytes
+    static final int MAX_RANGES = (Integer.MAX_VALUE / Long.BYTES - HEADER_LONGS) / 2;
+
+    private final int count;
+    private final long covered;
+    private final long checksum;
+    private final LongBuffer data;
+
+    private MappedRangeIndex(int count, long covered, long checksum, LongBuffer data) {
+      this.count = count;
+      this.covered = covered;
+      this.checksum = checksum;
+      this.data = data;
+    }
+
+    static void write(Path path, MergedRanges ranges) throws IOException {
+      if (ranges.size() > MAX_RANGES) {
+        throw new IOException(
+            ranges.size() + " ranges exceed the " + MAX_RANGES + " a range index can hold");
+      }
+      try (FileChannel channel =
+          FileChannel.open(
+              path,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.TRUNCATE_EXISTING,
+              StandardOpenOption.WRITE)) {
+        // pairs first, after room for the header, so the CRC is known when the header is written
+        channel.position(HEADER_LONGS * Long.BYTES);
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        for (int i = 0; i < ranges.size(); i++) {
+          if (buffer.remaining() < 2 * Long.BYTES) {
+            writeFully(channel, buffer, crc);
+          }
+          buffer.putLong(ranges.starts[i]).putLong(ranges.ends[i]);
+        }
+        writeFully(channel, buffer, crc);
+
+        buffer
+            .putLong(MAGIC)
+            .putLong(VERSION)
+            .putLong(ranges.size())
+            .putLong(ranges.covered())
+            .putLong(crc.getValue());
+        channel.position(0);
+        writeFully(channel, buffer, null);
+      }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, CRC32 crc)
+        throws IOException {
+      buffer.flip();
+      if (crc != null) {
+        crc.update(buffer.duplicate());
+      }
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    static MappedRangeIndex open(Path path) throws IOException {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        if (channel.size() > Integer.MAX_VALUE) {
+          throw new IOException("range index too large to map: " + path);
+        }
+        LongBuffer data =
+            channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asLongBuffer();
+        if (data.limit() < HEADER_LONGS || data.get(0) != MAGIC || data.get(1) != VERSION) {
+          throw new IOException("not a range index: " + path);
+        }
+        long count = data.get(2);
+        if (count < 0 || data.limit() != HEADER_LONGS + 2 * count) {
+          throw new IOException("truncated range index: " + path);
+        }
+        return new MappedRangeIndex((int) count, data.get(3), data.get(4), data);
+      }
+    }
+
+    // Opens index if it is newer than database, otherwise rebuilds it from database first
+    static MappedRangeIndex openOrBuild(Path database, Path index) throws IOException {
+      if (Files.exists(index)
+          && Files.getLastModifiedTime(index).compareTo(Files.getLastModifiedTime(database)) >= 0) {
+        try {
+          return open(index);
+        } catch (IOException e) {
+          // unreadable or from another version, fall through and rebuild it
+        }
+      }
+      write(index, parallelMerge(database));
+      return open(index);
+    }
+
+    public boolean verify() {
+      CRC32 crc = new CRC32();
+      ByteBuffer pair = ByteBuffer.allocate(2 * Long.BYTES);
+      for (int i = 0; i < count; i++) {
+        pair.clear();
+        pair.putLong(start(i)).putLong(end(i));
+        pair.flip();
+        crc.update(pair);
+      }
+      return crc.getValue() == checksum;
+    }
+
+    public int size() {
+      return count;
+    }
+
+    public long covered() {
+      return covered;
+    }
+
+    public boolean isFresh(long id) {
+      // last range starting at or before id
+      int lo = 0;
+      int hi = count;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (start(mid) <= id) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo > 0 && id <= end(lo - 1);
+    }
+
+    private long start(int i) {
+      return data.get(HEADER_LONGS + 2 * i);
+    }
+
+    private long end(int i) {
+      return data.get(HEADER_LONGS + 2 * i + 1);
+    }
+  }
+
+  public static void main(String[] args) throws IOException, URISyntaxException {
+    ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    Path path = Paths.get(loader.getResource("ingredients.txt").toURI());
+    long[] counts = streamFreshCount(path);
+    long ingredientsSum = counts[0];
+    long freshIngredients = counts[1];
     System.out.println(ingredientsSum);
     System.out.println(freshIngredients);
+    checkFreshRangeSet(5000, 5);
+  }
+
+  // Adds `ranges` random ranges to a FreshRangeSet, expires a quarter of them and compares
+  // covered() and membership with a fresh IntervalStore merge of the ranges still live. Enough
+  // ranges to force the node arrays to grow several times.
+  static void checkFreshRangeSet(int ranges, long seed) {
+    Random random = new Random(seed);
+    FreshRangeSet set = new FreshRangeSet();
+    List<long[]> live = new ArrayList<>();
+    for (int i = 0; i < ranges; i++) {
+      long start = random.nextLong() >>> 2;
+      long end = start + random.nextInt(1 << 20);
+      set.add(start, end);
+      live.add(new long[] {start, end});
+    }
+    for (int i = 0; i < ranges / 4; i++) {
+      long[] expired = live.remove(random.nextInt(live.size()));
+      set.remove(expired[0], expired[1]);
+    }
+    IntervalStore store = new IntervalStore();
+    for (long[] range : live) {
+      store.add(range[0], range[1]);
+      if (!set.isFresh(range[0]) || !set.isFresh(range[1])) {
+        throw new IllegalStateException("FreshRangeSet lost range " + range[0] + "-" + range[1]);
+      }
+    }
+    long expected = store.merge().covered();
+    if (set.covered() != expected) {
+      throw new IllegalStateException(
+          "FreshRangeSet covers " + set.covered() + " IDs, merge covers " + expected);
+    }
   }
 }
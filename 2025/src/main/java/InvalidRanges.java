@@ -1,8 +1,17 @@
+import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Day 2
@@ -102,7 +111,7 @@ public class InvalidRanges {
       Long start = range[0];
       Long end = range[1];
       for (long i = start; i <= end; i++) {
-        if (isValid(i)) {
+        if (isValidNumeric(i)) {
           invalidRangesSum += i;
         }
       }
@@ -110,31 +119,510 @@ public class InvalidRanges {
     return invalidRangesSum;
   }
 
-  private static boolean isValid(long i) {
-    String num = String.valueOf(i);
-    int len = num.length();
-    for (int pattern = 1; pattern <= len / 2; pattern++) {
-      if (len % pattern != 0) {
+  // 10^0 .. 10^18, every power of ten that fits in a long
+  private static final long[] POW10 = new long[19];
+
+  static {
+    POW10[0] = 1;
+    for (int i = 1; i < POW10.length; i++) {
+      POW10[i] = POW10[i - 1] * 10;
+    }
+  }
+
+  // Same answers as invalidRangeSum/invalidRangeSum2 (including long wrap-around), but each range
+  // costs O(digits^2) instead of O(end - start)
+  static long invalidRangeSumFast(List<Long[]> ranges) {
+    if (ranges == null || ranges.isEmpty()) {
+      return 0;
+    }
+    long invalidRangesSum = 0;
+    for (Long[] range : ranges) {
+      invalidRangesSum += repeatedPatternSum(range[0], range[1], true);
+    }
+    return invalidRangesSum;
+  }
+
+  static long invalidRangeSum2Fast(List<Long[]> ranges) {
+    if (ranges == null || ranges.isEmpty()) {
+      return 0;
+    }
+    long invalidRangesSum = 0;
+    for (Long[] range : ranges) {
+      invalidRangesSum += repeatedPatternSum(range[0], range[1], false);
+    }
+    return invalidRangesSum;
+  }
+
+  // Sum of the IDs in [start, end] made of a pattern repeated exactly twice (part 1) or at least
+  // twice (part 2).
+  //
+  // An ID with len digits whose period divides p is x * (10^(len-p) + ... + 10^p + 1) for a
+  // p-digit x, so for a fixed (len, p) the IDs in range are one run of consecutive x and their sum
+  // is an arithmetic series. For part 2 an ID like 111111 has periods 1, 2 and 3, so we first turn
+  // "period divides p" sums into "smallest period is exactly p" sums by subtracting the divisors
+  // of p, then add those up over the proper divisors of len.
+  static long repeatedPatternSum(long start, long end, boolean exactlyTwice) {
+    long sum = 0;
+    for (int len = 2; len <= 19; len++) {
+      if (exactlyTwice) {
+        if (len % 2 == 0) {
+          sum += periodSum(start, end, len, len / 2);
+        }
         continue;
       }
-      int repeats = len / pattern;
-      if (repeats != 2 && repeats != 3 && repeats != 5 && repeats != 7) {
-        continue;
+      long[] exactPeriod = new long[len];
+      for (int p = 1; p < len; p++) {
+        if (len % p != 0) {
+          continue;
+        }
+        exactPeriod[p] = periodSum(start, end, len, p);
+        for (int q = 1; q < p; q++) {
+          if (p % q == 0) {
+            exactPeriod[p] -= exactPeriod[q];
+          }
+        }
+        sum += exactPeriod[p];
+      }
+    }
+    return sum;
+  }
+
+  // Sum of the len-digit IDs in [start, end] whose period divides p
+  private static long periodSum(long start, long end, int len, int p) {
+    long repunit = 0;
+    for (int i = 0; i < len / p; i++) {
+      repunit = repunit * POW10[p] + 1;
+    }
+    long lo = POW10[p - 1];
+    if (start > 0) {
+      lo = Math.max(lo, start / repunit + (start % repunit != 0 ? 1 : 0));
+    }
+    long hi = Math.min(POW10[p] - 1, end / repunit);
+    if (lo > hi) {
+      return 0;
+    }
+    // n * (lo + hi) / 2, halving whichever factor is even so the product wraps exactly like the
+    // brute-force running sum does
+    long n = hi - lo + 1;
+    long ends = lo + hi;
+    long series = (n % 2 == 0) ? (n / 2) * ends : n * (ends / 2);
+    return series * repunit;
+  }
+
+  // REPUNITS[len][p] = (10^len - 1) / (10^p - 1): multiplying a p-digit pattern by it repeats the
+  // pattern len / p times. Only filled in where p divides len and the repeat count is prime.
+  private static final long[][] REPUNITS = new long[20][];
+
+  static {
+    for (int len = 2; len < REPUNITS.length; len++) {
+      REPUNITS[len] = new long[len];
+      for (int p = 1; p < len; p++) {
+        int repeats = len / p;
+        if (len % p != 0 || !isPrime(repeats)) {
+          continue;
+        }
+        long repunit = 0;
+        for (int i = 0; i < repeats; i++) {
+          repunit = repunit * POW10[p] + 1;
+        }
+        REPUNITS[len][p] = repunit;
       }
-      String subPatttern = num.substring(0, pattern);
-      StringBuilder sb = new StringBuilder();
-      for (int i1 = 0; i1 < repeats; i1++) {
-        sb.append(subPatttern);
+    }
+  }
+
+  private static boolean isPrime(int n) {
+    for (int d = 2; d * d <= n; d++) {
+      if (n % d == 0) {
+        return false;
       }
-      if (num.equals(sb.toString())) {
+    }
+    return n > 1;
+  }
+
+  // i is a pattern repeated at least twice exactly when, for some prime repeat count dividing its
+  // digit count, the matching repunit divides it. No strings are built, so the brute-force loop
+  // allocates nothing per ID.
+  static boolean isValidNumeric(long i) {
+    if (i < 10) {
+      return false;
+    }
+    int len = 19;
+    while (len > 1 && i < POW10[len - 1]) {
+      len--;
+    }
+    long[] repunits = REPUNITS[len];
+    for (int p = 1; p < len; p++) {
+      long repunit = repunits[p];
+      if (repunit != 0 && i % repunit == 0) {
         return true;
       }
     }
     return false;
   }
 
+  // Sorted table of every invalid ID below 10^maxDigits with running sums, stored as
+  //   magic, exactlyTwice, maxDigits, count, ids[count], prefix[count + 1]
+  // and memory-mapped on open. A range sum is then two binary searches and a subtraction; the
+  // part of a range at or above 10^maxDigits falls back to repeatedPatternSum.
+  //
+  // Going all the way to Long.MAX_VALUE is not practical: 18-digit IDs alone include 9 * 10^8
+  // patterns repeated twice, so the table is capped at MAX_INDEX_DIGITS (about 10^7 entries).
+  static class InvalidIdIndex {
+    private static final long MAGIC = 0x494e56414c494431L; // "INVALID1"
+    private static final int HEADER_LONGS = 4;
+    static final int MAX_INDEX_DIGITS = 14;
+
+    private final boolean exactlyTwice;
+    private final long limit;
+    private final int count;
+    private final LongBuffer data;
+
+    private InvalidIdIndex(boolean exactlyTwice, int maxDigits, int count, LongBuffer data) {
+      this.exactlyTwice = exactlyTwice;
+      this.limit = POW10[maxDigits];
+      this.count = count;
+      this.data = data;
+    }
+
+    static void build(Path path, boolean exactlyTwice, int maxDigits) throws IOException {
+      if (maxDigits < 1 || maxDigits > MAX_INDEX_DIGITS) {
+        throw new IllegalArgumentException("maxDigits must be in 1.." + MAX_INDEX_DIGITS);
+      }
+      long[] ids = enumerate(exactlyTwice, maxDigits);
+      try (FileChannel channel =
+          FileChannel.open(
+              path,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.TRUNCATE_EXISTING,
+              StandardOpenOption.WRITE)) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        buffer.putLong(MAGIC).putLong(exactlyTwice ? 1 : 0).putLong(maxDigits).putLong(ids.length);
+        for (long id : ids) {
+          buffer = flushIfFull(channel, buffer);
+          buffer.putLong(id);
+        }
+        long prefix = 0;
+        buffer = flushIfFull(channel, buffer);
+        buffer.putLong(prefix);
+        for (long id : ids) {
+          prefix += id;
+          buffer = flushIfFull(channel, buffer);
+          buffer.putLong(prefix);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+    }
+
+    private static ByteBuffer flushIfFull(FileChannel channel, ByteBuffer buffer)
+        throws IOException {
+      if (buffer.remaining() < Long.BYTES) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        buffer.clear();
+      }
+      return buffer;
+    }
+
+    // Every invalid ID with at most maxDigits digits, ascending. IDs are generated per digit
+    // length as pattern * repunit, so sorting and de-duplicating one length at a time (111111 is
+    // produced by several pattern lengths) keeps the whole array sorted.
+    private static long[] enumerate(boolean exactlyTwice, int maxDigits) {
+      long[] ids = new long[1024];
+      int count = 0;
+      for (int len = 2; len <= maxDigits; len++) {
+        int lenStart = count;
+        for (int p = 1; p < len; p++) {
+          long repunit = REPUNITS[len][p];
+          if (repunit == 0 || (exactlyTwice && p * 2 != len)) {
+            continue;
+          }
+          for (long x = POW10[p - 1]; x < POW10[p]; x++) {
+            if (count == ids.length) {
+              ids = Arrays.copyOf(ids, count << 1);
+            }
+            ids[count++] = x * repunit;
+          }
+        }
+        Arrays.sort(ids, lenStart, count);
+        int unique = lenStart;
+        for (int i = lenStart; i < count; i++) {
+          if (unique == lenStart || ids[unique - 1] != ids[i]) {
+            ids[unique++] = ids[i];
+          }
+        }
+        count = unique;
+      }
+      return Arrays.copyOf(ids, count);
+    }
+
+    static InvalidIdIndex open(Path path) throws IOException {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        LongBuffer data =
+            channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asLongBuffer();
+        if (data.limit() < HEADER_LONGS || data.get(0) != MAGIC) {
+          throw new IOException("not an invalid ID index: " + path);
+        }
+        int maxDigits = (int) data.get(2);
+        int count = (int) data.get(3);
+        if (maxDigits < 1
+            || maxDigits > MAX_INDEX_DIGITS
+            || data.limit() != HEADER_LONGS + 2L * count + 1) {
+          throw new IOException("corrupt invalid ID index: " + path);
+        }
+        return new InvalidIdIndex(data.get(1) == 1, maxDigits, count, data);
+      }
+    }
+
+    boolean isExactlyTwice() {
+      return exactlyTwice;
+    }
+
+    long sum(long start, long end) {
+      if (start > end) {
+        return 0;
+      }
+      long sum = 0;
+      if (start < limit) {
+        long indexedEnd = Math.min(end, limit - 1);
+        sum = prefix(upperBound(indexedEnd)) - prefix(upperBound(start - 1));
+      }
+      if (end >= limit) {
+        sum += repeatedPatternSum(Math.max(start, limit), end, exactlyTwice);
+      }
+      return sum;
+    }
+
+    // Number of indexed IDs <= value
+    private int upperBound(long value) {
+      int lo = 0;
+      int hi = count;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (data.get(HEADER_LONGS + mid) <= value) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo;
+    }
+
+    private long prefix(int n) {
+      return data.get(HEADER_LONGS + count + n);
+    }
+  }
+
+  static long invalidRangeSumIndexed(List<Long[]> ranges, InvalidIdIndex index) {
+    if (ranges == null || ranges.isEmpty()) {
+      return 0;
+    }
+    long invalidRangesSum = 0;
+    for (Long[] range : ranges) {
+      invalidRangesSum += index.sum(range[0], range[1]);
+    }
+    return invalidRangesSum;
+  }
+
+  // Numeric version of the part 1 check: an even digit count and divisible by 10^(len/2) + 1
+  static boolean isRepeatedTwiceNumeric(long i) {
+    if (i < 10) {
+      return false;
+    }
+    int len = 19;
+    while (len > 1 && i < POW10[len - 1]) {
+      len--;
+    }
+    return len % 2 == 0 && i % REPUNITS[len][len / 2] == 0;
+  }
+
+  // Merges overlapping or touching ranges into {starts, ends}. Sorting the starts and the ends
+  // independently is enough for a union: a merged range closes at end j as soon as the next start
+  // lies beyond it.
+  static long[][] mergeRanges(List<Long[]> ranges) {
+    long[] starts = new long[ranges.size()];
+    long[] ends = new long[ranges.size()];
+    int n = 0;
+    for (Long[] range : ranges) {
+      // an empty range would pair its end with some other range's start after sorting
+      if (range[0] <= range[1]) {
+        starts[n] = range[0];
+        ends[n] = range[1];
+        n++;
+      }
+    }
+    starts = Arrays.copyOf(starts, n);
+    ends = Arrays.copyOf(ends, n);
+    Arrays.sort(starts);
+    Arrays.sort(ends);
+    int merged = 0;
+    for (int i = 0; i < n; i++) {
+      long start = starts[i];
+      while (i + 1 < n && starts[i + 1] - 1 <= ends[i]) {
+        i++;
+      }
+      starts[merged] = start;
+      ends[merged] = ends[i];
+      merged++;
+    }
+    return new long[][] {Arrays.copyOf(starts, merged), Arrays.copyOf(ends, merged)};
+  }
+
+  // IDs per leaf task in the parallel scan
+  private static final long SCAN_CHUNK = 1L << 20;
+
+  // Brute-force sum over [from, to], halved until a piece is small enough to scan directly, so a
+  // single huge range is spread over the pool by work stealing
+  static class RangeScanTask extends RecursiveTask<Long> {
+    private static final long serialVersionUID = 1L;
+
+    private final long from;
+    private final long to;
+    private final boolean exactlyTwice;
+
+    public RangeScanTask(long from, long to, boolean exactlyTwice) {
+      this.from = from;
+      this.to = to;
+      this.exactlyTwice = exactlyTwice;
+    }
+
+    @Override
+    protected Long compute() {
+      if (to - from < SCAN_CHUNK) {
+        long sum = 0;
+        // checking i == to before incrementing keeps a range ending at Long.MAX_VALUE finite
+        for (long i = from; ; i++) {
+          if (exactlyTwice ? isRepeatedTwiceNumeric(i) : isValidNumeric(i)) {
+            sum += i;
+          }
+          if (i == to) {
+            break;
+          }
+        }
+        return sum;
+      }
+      long mid = from + (to - from) / 2;
+      RangeScanTask left = new RangeScanTask(from, mid, exactlyTwice);
+      left.fork();
+      long right = new RangeScanTask(mid + 1, to, exactlyTwice).compute();
+      return left.join() + right;
+    }
+  }
+
+  // Parallel fallback for invalidRangeSum/invalidRangeSum2. Overlapping ranges are merged first,
+  // so an ID covered by two ranges is summed once here but twice by the sequential loops.
+  static long invalidRangeSumParallel(List<Long[]> ranges) {
+    return parallelScan(ranges, true);
+  }
+
+  static long invalidRangeSum2Parallel(List<Long[]> ranges) {
+    return parallelScan(ranges, false);
+  }
+
+  private static long parallelScan(List<Long[]> ranges, boolean exactlyTwice) {
+    if (ranges == null || ranges.isEmpty()) {
+      return 0;
+    }
+    long[][] merged = mergeRanges(ranges);
+    List<RangeScanTask> tasks = new ArrayList<>();
+    for (int i = 0; i < merged[0].length; i++) {
+      RangeScanTask task = new RangeScanTask(merged[0][i], merged[1][i], exactlyTwice);
+      ForkJoinPool.commonPool().execute(task);
+      tasks.add(task);
+    }
+    long invalidRangesSum = 0;
+    for (RangeScanTask task : tasks) {
+      invalidRangesSum += task.join();
+    }
+    return invalidRangesSum;
+  }
+
+  // Same sums as invalidRangeSumFast/invalidRangeSum2Fast for bounds given as decimal strings of
+  // any length. Without the long cap there is no wrap-around, so results only match the long
+  // versions while the true sum fits in a long.
+  static BigInteger invalidRangeSumBig(List<String[]> ranges) {
+    return bigRangeSum(ranges, true);
+  }
+
+  static BigInteger invalidRangeSum2Big(List<String[]> ranges) {
+    return bigRangeSum(ranges, false);
+  }
+
+  private static BigInteger bigRangeSum(List<String[]> ranges, boolean exactlyTwice) {
+    BigInteger invalidRangesSum = BigInteger.ZERO;
+    if (ranges == null) {
+      return invalidRangesSum;
+    }
+    for (String[] range : ranges) {
+      BigInteger start = new BigInteger(range[0].trim());
+      BigInteger end = new BigInteger(range[1].trim());
+      invalidRangesSum = invalidRangesSum.add(repeatedPatternSum(start, end, exactlyTwice));
+    }
+    return invalidRangesSum;
+  }
+
+  // repeatedPatternSum over BigInteger. The work is a handful of multiplications and divisions per
+  // (digit length, pattern length) pair up to the digit count of end, independent of the width of
+  // the range, so 100-digit bounds are cheap.
+  static BigInteger repeatedPatternSum(BigInteger start, BigInteger end, boolean exactlyTwice) {
+    BigInteger sum = BigInteger.ZERO;
+    if (start.compareTo(end) > 0 || end.signum() <= 0) {
+      return sum;
+    }
+    int maxLen = end.toString().length();
+    for (int len = 2; len <= maxLen; len++) {
+      if (exactlyTwice) {
+        if (len % 2 == 0) {
+          sum = sum.add(periodSum(start, end, len, len / 2));
+        }
+        continue;
+      }
+      BigInteger[] exactPeriod = new BigInteger[len];
+      for (int p = 1; p < len; p++) {
+        if (len % p != 0) {
+          continue;
+        }
+        exactPeriod[p] = periodSum(start, end, len, p);
+        for (int q = 1; q < p; q++) {
+          if (p % q == 0) {
+            exactPeriod[p] = exactPeriod[p].subtract(exactPeriod[q]);
+          }
+        }
+        sum = sum.add(exactPeriod[p]);
+      }
+    }
+    return sum;
+  }
+
+  private static BigInteger periodSum(BigInteger start, BigInteger end, int len, int p) {
+    BigInteger patternLimit = BigInteger.TEN.pow(p);
+    BigInteger repunit =
+        BigInteger.TEN
+            .pow(len)
+            .subtract(BigInteger.ONE)
+            .divide(patternLimit.subtract(BigInteger.ONE));
+    BigInteger lo = BigInteger.TEN.pow(p - 1);
+    if (start.signum() > 0) {
+      BigInteger[] qr = start.divideAndRemainder(repunit);
+      BigInteger first = qr[1].signum() != 0 ? qr[0].add(BigInteger.ONE) : qr[0];
+      lo = lo.max(first);
+    }
+    BigInteger hi = patternLimit.subtract(BigInteger.ONE).min(end.divide(repunit));
+    if (lo.compareTo(hi) > 0) {
+      return BigInteger.ZERO;
+    }
+    BigInteger n = hi.subtract(lo).add(BigInteger.ONE);
+    return n.multiply(lo.add(hi)).shiftRight(1).multiply(repunit);
+  }
+
   public static void main(String[] args) {
     List<Long[]> rangesList = new ArrayList<>();
+    List<String[]> bigRangesList = new ArrayList<>();
+    boolean fitsLong = true;
     ClassLoader loader = Thread.currentThread().getContextClassLoader();
     InputStream is = loader.getResourceAsStream("invalidranges.txt");
     Scanner scanner = new Scanner(is);
@@ -142,15 +630,29 @@ public class InvalidRanges {
       String line = scanner.nextLine();
       String[] ranges = line.split(",");
       for (String range : ranges) {
-        Long[] rangeArray = new Long[2];
         String[] startEnd = range.split("-");
-        rangeArray[0] = Long.parseLong(startEnd[0]);
-        rangeArray[1] = Long.parseLong(startEnd[1]);
-        rangesList.add(rangeArray);
+        bigRangesList.add(startEnd);
+        if (!fitsLong) {
+          continue;
+        }
+        try {
+          Long[] rangeArray = new Long[2];
+          rangeArray[0] = Long.parseLong(startEnd[0].trim());
+          rangeArray[1] = Long.parseLong(startEnd[1].trim());
+          rangesList.add(rangeArray);
+        } catch (NumberFormatException e) {
+          // IDs past 19 digits, switch to the BigInteger path
+          fitsLong = false;
+        }
       }
     }
-    long rangeSum = invalidRangeSum(rangesList);
-    long rangeSum2 = invalidRangeSum2(rangesList);
+    if (!fitsLong) {
+      System.out.println(invalidRangeSumBig(bigRangesList));
+      System.out.println(invalidRangeSum2Big(bigRangesList));
+      return;
+    }
+    long rangeSum = invalidRangeSumFast(rangesList);
+    long rangeSum2 = invalidRangeSum2Fast(rangesList);
     System.out.println(rangeSum);
     System.out.println(rangeSum2);
   }
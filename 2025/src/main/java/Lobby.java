@@ -1,7 +1,19 @@
-import java.io.InputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Day 3
@@ -96,7 +108,6 @@ public class Lobby {
         }
         i++;
       }
-      System.out.println(battery + " " + sb.toString());
       maxJoltage += Long.parseLong(sb.toString());
     }
 
@@ -139,18 +150,287 @@ public class Lobby {
     return maxJoltage;
   }
 
-  public static void main(String[] args) {
-    List<String> batteries = new ArrayList<>();
+  // Largest k-digit subsequence of the bank as digit values, in one pass with a stack bounded by
+  // k: a smaller digit on top is popped while a later, larger digit can still replace it (there
+  // are drops left), which is the greedy choice calculateMaxJoltage2 makes digit by digit.
+  // Banks no longer than k keep every digit.
+  static byte[] selectDigits(CharSequence bank, int k) {
+    int len = bank.length();
+    byte[] stack = new byte[Math.min(k, len)];
+    int top = 0;
+    int drops = len - stack.length;
+    for (int i = 0; i < len; i++) {
+      byte digit = (byte) (bank.charAt(i) - '0');
+      while (drops > 0 && top > 0 && stack[top - 1] < digit) {
+        top--;
+        drops--;
+      }
+      if (top < stack.length) {
+        stack[top++] = digit;
+      } else {
+        drops--;
+      }
+    }
+    return stack;
+  }
+
+  // Fits in a long for k <= 18; use maxJoltageDigits/maxJoltageBig for more
+  static long maxJoltage(CharSequence bank, int k) {
+    if (k > 18) {
+      throw new IllegalArgumentException(k + " digits do not fit in a long, use maxJoltageBig");
+    }
+    long joltage = 0;
+    for (byte digit : selectDigits(bank, k)) {
+      joltage = joltage * 10 + digit;
+    }
+    return joltage;
+  }
+
+  static String maxJoltageDigits(CharSequence bank, int k) {
+    byte[] digits = selectDigits(bank, k);
+    char[] chars = new char[digits.length];
+    for (int i = 0; i < digits.length; i++) {
+      chars[i] = (char) ('0' + digits[i]);
+    }
+    return new String(chars);
+  }
+
+  static BigInteger maxJoltageBig(CharSequence bank, int k) {
+    if (k <= 18) {
+      return BigInteger.valueOf(maxJoltage(bank, k));
+    }
+    String digits = maxJoltageDigits(bank, k);
+    if (digits.isEmpty()) {
+      return BigInteger.ZERO;
+    }
+    return new BigInteger(digits);
+  }
+
+  // calculateMaxJoltage is k = 2 and calculateMaxJoltage2 is k = 12
+  static long calculateMaxJoltage(List<String> batteries, int k) {
+    if (batteries == null || batteries.isEmpty()) {
+      return 0;
+    }
+    long maxJoltage = 0;
+    for (String battery : batteries) {
+      maxJoltage += maxJoltage(battery, k);
+    }
+    return maxJoltage;
+  }
+
+  static BigInteger calculateMaxJoltageBig(List<String> batteries, int k) {
+    BigInteger maxJoltage = BigInteger.ZERO;
+    if (batteries == null) {
+      return maxJoltage;
+    }
+    for (String battery : batteries) {
+      maxJoltage = maxJoltage.add(maxJoltageBig(battery, k));
+    }
+    return maxJoltage;
+  }
+
+  // Reusable index over one bank for repeated queries with different k or sub-windows.
+  // next[d][i] is the first position >= i holding digit d (or the bank length), so the greedy
+  // step of calculateMaxJoltage2 - the leftmost largest digit in [searchStart, searchEnd] - is a
+  // lookup per candidate digit instead of a scan, and a query costs O(10 * k).
+  static class BankIndex {
+    private final int length;
+    private final int[][] next = new int[10][];
+
+    public BankIndex(CharSequence bank) {
+      length = bank.length();
+      for (int d = 0; d < 10; d++) {
+        next[d] = new int[length + 1];
+        next[d][length] = length;
+      }
+      for (int i = length - 1; i >= 0; i--) {
+        int digit = bank.charAt(i) - '0';
+        for (int d = 0; d < 10; d++) {
+          next[d][i] = d == digit ? i : next[d][i + 1];
+        }
+      }
+    }
+
+    public int length() {
+      return length;
+    }
+
+    // Same digits as selectDigits on bank[from, to)
+    public byte[] selectDigits(int from, int to, int k) {
+      if (from < 0 || to > length || from > to) {
+        throw new IndexOutOfBoundsException("window [" + from + ", " + to + ") of " + length);
+      }
+      byte[] digits = new byte[Math.min(k, to - from)];
+      int searchStart = from;
+      for (int i = 0; i < digits.length; i++) {
+        int searchEnd = to - (digits.length - i);
+        for (int d = 9; d >= 0; d--) {
+          int pos = next[d][searchStart];
+          if (pos <= searchEnd) {
+            digits[i] = (byte) d;
+            searchStart = pos + 1;
+            break;
+          }
+        }
+      }
+      return digits;
+    }
+
+    public long maxJoltage(int k) {
+      return maxJoltage(0, length, k);
+    }
+
+    public long maxJoltage(int from, int to, int k) {
+      if (k > 18) {
+        throw new IllegalArgumentException(k + " digits do not fit in a long, use maxJoltageBig");
+      }
+      long joltage = 0;
+      for (byte digit : selectDigits(from, to, k)) {
+        joltage = joltage * 10 + digit;
+      }
+      return joltage;
+    }
+
+    public BigInteger maxJoltageBig(int from, int to, int k) {
+      byte[] digits = selectDigits(from, to, k);
+      if (digits.length == 0) {
+        return BigInteger.ZERO;
+      }
+      char[] chars = new char[digits.length];
+      for (int i = 0; i < digits.length; i++) {
+        chars[i] = (char) ('0' + digits[i]);
+      }
+      return new BigInteger(new String(chars));
+    }
+  }
+
+  // Streams the banks from the file and returns the total joltage for each requested k (each at
+  // most 18), e.g. {2, 12} for both parts in one read.
+  //
+  // Line length is not known up front, so instead of the stack in selectDigits each k keeps
+  // best[j], the largest j-digit number picked so far, for j = 0..k. A new digit d can extend
+  // any best[j - 1], so best[j] = max(best[j], best[j - 1] * 10 + d), updated from j = k down.
+  // That is O(k) longs per bank no matter how long the line is, and nothing is allocated per bank.
+  static long[] streamMaxJoltage(Path path, int... ks) throws IOException {
+    long[][] best = newBanks(ks);
+    long[] totals = new long[ks.length];
+    int bankLength = 0;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        bankLength = scanBanks(buffer, best, totals, bankLength);
+        buffer.clear();
+      }
+    }
+    // last bank without a trailing newline
+    if (bankLength > 0) {
+      addBanks(best, totals, bankLength);
+    }
+    return totals;
+  }
+
+  private static long[][] newBanks(int[] ks) {
+    long[][] best = new long[ks.length][];
+    for (int i = 0; i < ks.length; i++) {
+      if (ks[i] < 1 || ks[i] > 18) {
+        throw new IllegalArgumentException(ks[i] + " digits do not fit in a long");
+      }
+      best[i] = new long[ks[i] + 1];
+    }
+    resetBanks(best);
+    return best;
+  }
+
+  // Consumes the buffer, adding every completed bank to totals. Returns the length of the bank
+  // still open at the end of the buffer so the next buffer can continue it.
+  private static int scanBanks(ByteBuffer buffer, long[][] best, long[] totals, int bankLength) {
+    while (buffer.hasRemaining()) {
+      byte b = buffer.get();
+      if (b >= '0' && b <= '9') {
+        int digit = b - '0';
+        bankLength++;
+        for (long[] bank : best) {
+          for (int j = Math.min(bank.length - 1, bankLength); j > 0; j--) {
+            long candidate = bank[j - 1] * 10 + digit;
+            if (candidate > bank[j]) {
+              bank[j] = candidate;
+            }
+          }
+        }
+      } else if (b == '\n' && bankLength > 0) {
+        addBanks(best, totals, bankLength);
+        bankLength = 0;
+      }
+    }
+    return bankLength;
+  }
+
+  // Parallel version of streamMaxJoltage. The file is cut into newline-aligned regions (see
+  // MappedRegions.lineAlignedCuts) so no bank is split. Every worker maps its own region one
+  // window at a time and sums into its own totals, which are added up at the end.
+  static long[] parallelMaxJoltage(Path path, int... ks) throws IOException {
+    long[] totals = new long[ks.length];
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long[] cuts = MappedRegions.lineAlignedCuts(channel);
+      List<Callable<long[]>> workers = new ArrayList<>();
+      for (int i = 0; i + 1 < cuts.length; i++) {
+        long from = cuts[i];
+        long to = cuts[i + 1];
+        if (from >= to) {
+          continue;
+        }
+        workers.add(
+            () -> {
+              long[][] best = newBanks(ks);
+              long[] regionTotals = new long[ks.length];
+              int bankLength = 0;
+              // the bank in progress carries over from one window to the next
+              for (long offset = from; offset < to; offset += MappedRegions.MAX_WINDOW) {
+                MappedByteBuffer map = MappedRegions.mapWindow(channel, offset, to);
+                bankLength = scanBanks(map, best, regionTotals, bankLength);
+              }
+              if (bankLength > 0) {
+                addBanks(best, regionTotals, bankLength);
+              }
+              return regionTotals;
+            });
+      }
+      for (Future<long[]> result : ForkJoinPool.commonPool().invokeAll(workers)) {
+        long[] regionTotals = result.get();
+        for (int i = 0; i < totals.length; i++) {
+          totals[i] += regionTotals[i];
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+    return totals;
+  }
+
+  private static void addBanks(long[][] best, long[] totals, int bankLength) {
+    for (int i = 0; i < best.length; i++) {
+      // a bank shorter than k keeps every digit, as in selectDigits
+      totals[i] += best[i][Math.min(best[i].length - 1, bankLength)];
+    }
+    resetBanks(best);
+  }
+
+  private static void resetBanks(long[][] best) {
+    for (long[] bank : best) {
+      Arrays.fill(bank, -1);
+      bank[0] = 0;
+    }
+  }
+
+  public static void main(String[] args) throws IOException, URISyntaxException {
     ClassLoader loader = Thread.currentThread().getContextClassLoader();
-    InputStream is = loader.getResourceAsStream("lobby.txt");
-    Scanner scanner = new Scanner(is);
-    while (scanner.hasNextLine()) {
-      String line = scanner.nextLine();
-      batteries.add(line);
-    }
-    long maxJoltage = calculateMaxJoltage(batteries);
-    long maxJoltage2 = calculateMaxJoltage2(batteries);
-    System.out.println(maxJoltage);
-    System.out.println(maxJoltage2);
+    Path path = Paths.get(loader.getResource("lobby.txt").toURI());
+    long[] maxJoltages = parallelMaxJoltage(path, 2, 12);
+    System.out.println(maxJoltages[0]);
+    System.out.println(maxJoltages[1]);
   }
 }
@@ -0,0 +1,58 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory-mapped reading of large inputs: newline-aligned regions for the parallel readers in Lobby
+ * and Ingredients, and bounded windows for everything that maps a file.
+ */
+public class MappedRegions {
+
+  // Largest window mapped at once; FileChannel.map is limited to Integer.MAX_VALUE bytes
+  static final long MAX_WINDOW = 1L << 30;
+
+  private MappedRegions() {}
+
+  // Cuts the file into one region per core (more if a region would exceed MAX_WINDOW), each cut
+  // moved forward to just after a newline so no line is split. Returns regions + 1 offsets from 0
+  // to the file size; a region is empty when a long line swallowed it, and one can still exceed
+  // MAX_WINDOW, so readers map a region with mapWindow.
+  static long[] lineAlignedCuts(FileChannel channel) throws IOException {
+    long size = channel.size();
+    int regions = Runtime.getRuntime().availableProcessors();
+    regions = (int) Math.max(regions, (size + MAX_WINDOW - 1) / MAX_WINDOW);
+    long[] cuts = new long[regions + 1];
+    for (int i = 1; i < regions; i++) {
+      cuts[i] = nextLineStart(channel, Math.max(cuts[i - 1], size / regions * i));
+    }
+    cuts[regions] = size;
+    return cuts;
+  }
+
+  // Read-only map of [offset, min(offset + MAX_WINDOW, end)); callers step offset by MAX_WINDOW
+  // and carry any partly parsed line from one window into the next
+  static MappedByteBuffer mapWindow(FileChannel channel, long offset, long end)
+      throws IOException {
+    return channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(MAX_WINDOW, end - offset));
+  }
+
+  // Position just after the first newline at or after pos, or the file size if there is none
+  static long nextLineStart(FileChannel channel, long pos) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(4096);
+    while (pos < channel.size()) {
+      buffer.clear();
+      int read = channel.read(buffer, pos);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (buffer.get(i) == '\n') {
+          return pos + i + 1;
+        }
+      }
+      pos += read;
+    }
+    return channel.size();
+  }
+}
@@ -1,8 +1,18 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
 
 /**
  * --- Day 4: Printing Department --- You ride the escalator down to the printing department.
@@ -89,67 +99,665 @@ public class Printing {
     if (rolls == null || rolls.length == 0) {
       return 0;
     }
-    int totalAccesible = 0;
+    return (int) new GridAutomaton(rolls, NEIGHBOURS, 4).countRemovable();
+  }
+
+  private static int forkLiftRolls2(char[][] rolls) {
+    if (rolls == null || rolls.length == 0) {
+      return 0;
+    }
+    return (int) new GridAutomaton(rolls, NEIGHBOURS, 4).runToFixpoint();
+  }
+
+  // Removal automaton over a grid of rolls: a roll with fewer than threshold rolls among its
+  // neighbourhood (a list of {row, col} offsets) is removed, and all removals of a step happen at
+  // once. Cells are bytes in per-row arrays padded by the neighbourhood radius, so neighbour reads
+  // need no bounds checks and any grid the caller's char[][] can hold fits. Steps write into a
+  // second set of rows and swap, so nothing is allocated after construction and the caller's grid
+  // is never modified.
+  static class GridAutomaton {
+    private final int rows;
+    private final int cols;
+    private final int radius;
+    private final int[] rowOffsets;
+    private final int[] colOffsets;
+    private final int threshold;
+    private byte[][] cells;
+    private byte[][] next;
+    private long live;
+    private int steps;
+    private WaveRecorder recorder;
+
+    public GridAutomaton(char[][] grid, int[][] neighbourhood, int threshold) {
+      this.rows = grid.length;
+      this.cols = rows == 0 ? 0 : grid[0].length;
+      int r = 0;
+      for (int[] offset : neighbourhood) {
+        r = Math.max(r, Math.max(Math.abs(offset[0]), Math.abs(offset[1])));
+      }
+      this.radius = r;
+      this.rowOffsets = new int[neighbourhood.length];
+      this.colOffsets = new int[neighbourhood.length];
+      for (int i = 0; i < neighbourhood.length; i++) {
+        rowOffsets[i] = neighbourhood[i][0];
+        colOffsets[i] = neighbourhood[i][1];
+      }
+      this.threshold = threshold;
+      this.cells = new byte[rows + 2 * radius][cols + 2 * radius];
+      this.next = new byte[rows + 2 * radius][cols + 2 * radius];
+      for (int row = 0; row < rows; row++) {
+        byte[] cellRow = cells[row + radius];
+        for (int col = 0; col < cols && col < grid[row].length; col++) {
+          if (grid[row][col] == '@') {
+            cellRow[col + radius] = 1;
+            live++;
+          }
+        }
+      }
+    }
+
+    // Records every following step into recorder; null turns recording off
+    public void setRecorder(WaveRecorder recorder) {
+      if (recorder != null
+          && recorder.removalWave != null
+          && (recorder.rows != rows || recorder.cols != cols)) {
+        throw new IllegalArgumentException("recorder traces a different grid size");
+      }
+      this.recorder = recorder;
+    }
+
+    // row and col are padded coordinates
+    private int liveNeighbours(int row, int col) {
+      int count = 0;
+      for (int i = 0; i < rowOffsets.length; i++) {
+        count += cells[row + rowOffsets[i]][col + colOffsets[i]];
+      }
+      return count;
+    }
+
+    // Rolls the next step would remove, without applying it
+    public long countRemovable() {
+      long removable = 0;
+      for (int row = radius; row < rows + radius; row++) {
+        byte[] cellRow = cells[row];
+        for (int col = radius; col < cols + radius; col++) {
+          if (cellRow[col] == 1 && liveNeighbours(row, col) < threshold) {
+            removable++;
+          }
+        }
+      }
+      return removable;
+    }
+
+    // Applies one removal wave and returns how many rolls it removed
+    public long step() {
+      long start = recorder != null ? System.nanoTime() : 0;
+      int[][] trace = recorder != null ? recorder.removalWave : null;
+      int wave = steps + 1;
+      long removed = 0;
+      for (int row = radius; row < rows + radius; row++) {
+        byte[] cellRow = cells[row];
+        byte[] nextRow = next[row];
+        for (int col = radius; col < cols + radius; col++) {
+          byte cell = cellRow[col];
+          if (cell == 1 && liveNeighbours(row, col) < threshold) {
+            cell = 0;
+            removed++;
+            if (trace != null) {
+              trace[row - radius][col - radius] = wave;
+            }
+          }
+          nextRow[col] = cell;
+        }
+      }
+      byte[][] swap = cells;
+      cells = next;
+      next = swap;
+      live -= removed;
+      steps = wave;
+      if (recorder != null) {
+        recorder.record(removed, (long) rows * cols, System.nanoTime() - start);
+      }
+      return removed;
+    }
+
+    // Steps until a wave removes nothing and returns the total removed
+    public long runToFixpoint() {
+      long total = 0;
+      long removed;
+      while ((removed = step()) > 0) {
+        total += removed;
+      }
+      return total;
+    }
+
+    public long live() {
+      return live;
+    }
+
+    public boolean isLive(int row, int col) {
+      return cells[row + radius][col + radius] == 1;
+    }
+  }
+
+  // Per-wave statistics for GridAutomaton: rolls removed, cells scanned and elapsed nanoseconds,
+  // plus optionally the wave in which every cell was removed. Nothing is recorded, and nothing
+  // allocated, unless a recorder is attached with setRecorder.
+  static class WaveRecorder {
+    private static final int TRACE_MAGIC = 0x57415645; // "WAVE"
+
+    final int rows;
+    final int cols;
+    // wave (1-based) in which the cell at [row][col] was removed, 0 if it never was
+    final int[][] removalWave;
+    private long[] removed = new long[64];
+    private long[] scanned = new long[64];
+    private long[] nanos = new long[64];
+    private int waves;
+
+    // traceCells keeps the per-cell removal wave as well, one int per cell
+    public WaveRecorder(int rows, int cols, boolean traceCells) {
+      this.rows = rows;
+      this.cols = cols;
+      this.removalWave = traceCells ? new int[rows][cols] : null;
+    }
+
+    void record(long waveRemoved, long waveScanned, long waveNanos) {
+      if (waves == removed.length) {
+        removed = Arrays.copyOf(removed, waves << 1);
+        scanned = Arrays.copyOf(scanned, waves << 1);
+        nanos = Arrays.copyOf(nanos, waves << 1);
+      }
+      removed[waves] = waveRemoved;
+      scanned[waves] = waveScanned;
+      nanos[waves] = waveNanos;
+      waves++;
+    }
+
+    public int waves() {
+      return waves;
+    }
+
+    public long removed(int wave) {
+      return removed[wave];
+    }
+
+    public long scanned(int wave) {
+      return scanned[wave];
+    }
+
+    public long nanos(int wave) {
+      return nanos[wave];
+    }
+
+    // Writes magic, rows, cols, waves, the bytes per cell entry (1, 2 or 4, the smallest that
+    // holds the largest wave number stored) and then the removal wave of every cell in row-major
+    // order. Entries are absolute wave numbers, which can exceed waves when the recorder was
+    // attached to an automaton that had already run, so the width comes from the entries.
+    public void writeTrace(Path path) throws IOException {
+      if (removalWave == null) {
+        throw new IllegalStateException("recorder was created without cell tracing");
+      }
+      int maxWave = 0;
+      for (int[] row : removalWave) {
+        for (int wave : row) {
+          maxWave = Math.max(maxWave, wave);
+        }
+      }
+      int width = maxWave <= 0xff ? 1 : maxWave <= 0xffff ? 2 : 4;
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+        out.writeInt(TRACE_MAGIC);
+        out.writeInt(rows);
+        out.writeInt(cols);
+        out.writeInt(waves);
+        out.writeByte(width);
+        for (int[] row : removalWave) {
+          for (int wave : row) {
+            if (width == 1) {
+              out.writeByte(wave);
+            } else if (width == 2) {
+              out.writeShort(wave);
+            } else {
+              out.writeInt(wave);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  // forkLiftRolls2 with every wave recorded into recorder
+  static long forkLiftRolls2(char[][] rolls, WaveRecorder recorder) {
+    if (rolls == null || rolls.length == 0) {
+      return 0;
+    }
+    GridAutomaton automaton = new GridAutomaton(rolls, NEIGHBOURS, 4);
+    automaton.setRecorder(recorder);
+    return automaton.runToFixpoint();
+  }
+
+  // One bit per cell, bit j of word w in a row is column 64 * w + j, so neighbour tests for 64
+  // cells at a time are a handful of shifts and bitwise ops on three rows of words.
+  static class Bitboard {
+    final int rows;
+    final int cols;
+    final int words;
+    final long[][] bits;
+
+    public Bitboard(int rows, int cols) {
+      this.rows = rows;
+      this.cols = cols;
+      this.words = (cols + 63) >>> 6;
+      this.bits = new long[rows][words];
+    }
+
+    static Bitboard of(char[][] rolls) {
+      Bitboard board = new Bitboard(rolls.length, rolls.length == 0 ? 0 : rolls[0].length);
+      for (int row = 0; row < board.rows; row++) {
+        for (int col = 0; col < rolls[row].length && col < board.cols; col++) {
+          if (rolls[row][col] == '@') {
+            board.bits[row][col >>> 6] |= 1L << col;
+          }
+        }
+      }
+      return board;
+    }
+
+    // Rolls in word w of row that have fewer than four rolls among their eight neighbours. The
+    // eight neighbour masks go through a carry-save adder tree: three adders fold them into one
+    // ones column and four twos columns c1..c4, and since ones + 2 * (c1 + c2 + c3 + c4) >= 4
+    // exactly when at least two of c1..c4 are set, that is all the count we need.
+    long accessible(int row, int w) {
+      long[] above = row > 0 ? bits[row - 1] : null;
+      long[] middle = bits[row];
+      long[] below = row + 1 < rows ? bits[row + 1] : null;
+
+      long a = word(above, w);
+      long b = shiftedFromLeft(above, w);
+      long c = shiftedFromRight(above, w);
+      long d = shiftedFromLeft(middle, w);
+      long e = shiftedFromRight(middle, w);
+      long f = word(below, w);
+      long g = shiftedFromLeft(below, w);
+      long h = shiftedFromRight(below, w);
+
+      long abc = a ^ b ^ c;
+      long c1 = (a & b) | (c & (a ^ b));
+      long def = d ^ e ^ f;
+      long c2 = (d & e) | (f & (d ^ e));
+      long gh = g ^ h;
+      long c3 = g & h;
+      long c4 = (abc & def) | (gh & (abc ^ def));
+
+      long atLeastFour = (c1 & c2) | (c3 & c4) | ((c1 ^ c2) & (c3 ^ c4));
+      return middle[w] & ~atLeastFour;
+    }
+
+    long countAccessible() {
+      long total = 0;
+      for (int row = 0; row < rows; row++) {
+        for (int w = 0; w < words; w++) {
+          total += Long.bitCount(accessible(row, w));
+        }
+      }
+      return total;
+    }
+
+    private static long word(long[] line, int w) {
+      return line == null ? 0 : line[w];
+    }
+
+    // Bit j holds column j - 1, the neighbour on the left
+    private static long shiftedFromLeft(long[] line, int w) {
+      if (line == null) {
+        return 0;
+      }
+      long carry = w > 0 ? line[w - 1] >>> 63 : 0;
+      return (line[w] << 1) | carry;
+    }
+
+    // Bit j holds column j + 1, the neighbour on the right
+    private static long shiftedFromRight(long[] line, int w) {
+      if (line == null) {
+        return 0;
+      }
+      long carry = w + 1 < line.length ? line[w + 1] << 63 : 0;
+      return (line[w] >>> 1) | carry;
+    }
+  }
+
+  // Part 1 at word speed, same count as forkLiftRolls
+  static long forkLiftRollsBitboard(char[][] rolls) {
+    if (rolls == null || rolls.length == 0) {
+      return 0;
+    }
+    return Bitboard.of(rolls).countAccessible();
+  }
+
+  // Longest array the JVM reliably allocates; bounds the cell queue of forkLiftRollsWorklist and
+  // the stripe lists of forkLiftRollsParallel
+  private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+  private static final int[][] NEIGHBOURS = {
+    {0, 1}, {1, 0}, {0, -1}, {-1, 0}, {-1, -1}, {1, -1}, {-1, 1}, {1, 1}
+  };
+
+  // Same total as forkLiftRolls2 without rescanning the grid every wave. Each cell keeps its
+  // count of neighbouring rolls; removing a roll only decrements its eight neighbours, and a
+  // neighbour whose count drops below four joins the queue for the next wave. Removing a roll
+  // never makes another one less accessible, so every roll is queued at most once and the work is
+  // O(cells + removals).
+  //
+  // If removalWave is not null (rows x cols) it receives, for each removed roll, the 1-based wave
+  // it went in; other cells are left at 0. The grid is not modified.
+  //
+  // The per-cell state is kept in per-row arrays and queued cells are packed as row << 32 | col,
+  // so the grid size is not limited by int indexes; only the number of rolls has to fit the
+  // queue array.
+  static long forkLiftRollsWorklist(char[][] rolls, int[][] removalWave) {
+    if (rolls == null || rolls.length == 0) {
+      return 0;
+    }
     int rows = rolls.length;
     int cols = rolls[0].length;
+    byte[][] neighbours = new byte[rows][cols];
+    boolean[][] present = new boolean[rows][cols];
+    long rollCount = 0;
     for (int row = 0; row < rows; row++) {
       for (int col = 0; col < cols; col++) {
-        if (rolls[row][col] == '@') {
-          if (countValid(rolls, row, col, rows, cols)) {
-            totalAccesible++;
+        if (rolls[row][col] != '@') {
+          continue;
+        }
+        present[row][col] = true;
+        rollCount++;
+        for (int[] dir : NEIGHBOURS) {
+          int r = row + dir[0];
+          int c = col + dir[1];
+          if (r >= 0 && r < rows && c >= 0 && c < cols) {
+            neighbours[r][c]++;
+          }
+        }
+      }
+    }
+    if (rollCount > MAX_ARRAY_LENGTH) {
+      throw new IllegalArgumentException(
+          rollCount + " rolls do not fit in a worklist queue, use forkLiftRolls2");
+    }
+
+    // every roll enters the queue at most once, so it never needs more than rollCount slots
+    long[] queue = new long[(int) rollCount];
+    boolean[][] queued = new boolean[rows][cols];
+    int tail = 0;
+    for (int row = 0; row < rows; row++) {
+      for (int col = 0; col < cols; col++) {
+        if (present[row][col] && neighbours[row][col] < 4) {
+          queue[tail++] = (long) row << 32 | col;
+          queued[row][col] = true;
+        }
+      }
+    }
+
+    // the queue is consumed one wave at a time so removalWave matches forkLiftRolls2's waves
+    int head = 0;
+    int wave = 0;
+    while (head < tail) {
+      wave++;
+      int waveEnd = tail;
+      for (; head < waveEnd; head++) {
+        int row = (int) (queue[head] >>> 32);
+        int col = (int) queue[head];
+        present[row][col] = false;
+        if (removalWave != null) {
+          removalWave[row][col] = wave;
+        }
+        for (int[] dir : NEIGHBOURS) {
+          int r = row + dir[0];
+          int c = col + dir[1];
+          if (r < 0 || r >= rows || c < 0 || c >= cols) {
+            continue;
+          }
+          if (--neighbours[r][c] < 4 && present[r][c] && !queued[r][c]) {
+            queue[tail++] = (long) r << 32 | c;
+            queued[r][c] = true;
           }
         }
       }
     }
-    return totalAccesible;
+    return tail;
   }
 
-  private static int forkLiftRolls2(char[][] rolls) {
+  // Growable long list, so the per-stripe lists hold packed row << 32 | col cells without boxing
+  static class LongList {
+    long[] data = new long[16];
+    int size;
+
+    void add(long value) {
+      if (size == data.length) {
+        if (size == MAX_ARRAY_LENGTH) {
+          throw new IllegalStateException("more than " + MAX_ARRAY_LENGTH + " cells in a stripe");
+        }
+        data = Arrays.copyOf(data, (int) Math.min((long) size << 1, MAX_ARRAY_LENGTH));
+      }
+      data[size++] = value;
+    }
+
+    void clear() {
+      size = 0;
+    }
+  }
+
+  // Parallel forkLiftRolls2. The rows are cut into stripes, each owned by one worker, and every
+  // wave runs as two parallel phases with the end of each phase as the barrier:
+  //   1. each worker collects the accessible rolls of its stripe from its frontier, which is the
+  //      stripe's cells next to last wave's removals in this stripe and the two around it (the
+  //      halo rows); the first frontier is every roll
+  //   2. each worker removes its collected rolls and decrements their neighbours' counts; the
+  //      neighbours can sit in the next stripe, so the counts are atomic
+  // All removals of a wave are applied only after every stripe has picked its rolls, so the
+  // waves, and the total, are the same as the sequential rounds. Cell state is kept per row, so
+  // the grid size is not limited by int indexes.
+  static long forkLiftRollsParallel(char[][] rolls) {
     if (rolls == null || rolls.length == 0) {
       return 0;
     }
-    int totalAccesible = 0;
     int rows = rolls.length;
     int cols = rolls[0].length;
-    boolean proceedIteration = false;
-    ArrayList<int[]> toBeRemoved = new ArrayList<>();
-    do {
+    int stripes = Math.min(rows, 4 * Runtime.getRuntime().availableProcessors());
+    int[] stripeStart = new int[stripes + 1];
+    for (int s = 0; s <= stripes; s++) {
+      stripeStart[s] = (int) ((long) rows * s / stripes);
+    }
 
-      proceedIteration = false;
-      for (int row = 0; row < rows; row++) {
-        for (int col = 0; col < cols; col++) {
-          if (rolls[row][col] == '@') {
-            if (countValid(rolls, row, col, rows, cols)) {
-              toBeRemoved.add(new int[] {row, col});
+    AtomicIntegerArray[] neighbours = new AtomicIntegerArray[rows];
+    boolean[][] present = new boolean[rows][cols];
+    // wave in which a cell was last put on its stripe's list, to drop frontier duplicates
+    int[][] seen = new int[rows][cols];
+    LongList[] removed = new LongList[stripes];
+    LongList[] previous = new LongList[stripes];
+    for (int s = 0; s < stripes; s++) {
+      removed[s] = new LongList();
+      previous[s] = new LongList();
+    }
+
+    IntStream.range(0, stripes)
+        .parallel()
+        .forEach(
+            s -> {
+              for (int row = stripeStart[s]; row < stripeStart[s + 1]; row++) {
+                neighbours[row] = new AtomicIntegerArray(cols);
+                for (int col = 0; col < cols; col++) {
+                  if (rolls[row][col] != '@') {
+                    continue;
+                  }
+                  present[row][col] = true;
+                  int count = 0;
+                  for (int[] dir : NEIGHBOURS) {
+                    int r = row + dir[0];
+                    int c = col + dir[1];
+                    if (r >= 0 && r < rows && c >= 0 && c < cols && rolls[r][c] == '@') {
+                      count++;
+                    }
+                  }
+                  neighbours[row].set(col, count);
+                }
+              }
+            });
+
+    long total = 0;
+    for (int wave = 1; ; wave++) {
+      int currentWave = wave;
+      LongList[] last = previous;
+      LongList[] next = removed;
+      IntStream.range(0, stripes)
+          .parallel()
+          .forEach(
+              s -> {
+                LongList picked = next[s];
+                picked.clear();
+                int from = stripeStart[s];
+                int to = stripeStart[s + 1];
+                if (currentWave == 1) {
+                  for (int row = from; row < to; row++) {
+                    for (int col = 0; col < cols; col++) {
+                      if (present[row][col] && neighbours[row].get(col) < 4) {
+                        picked.add((long) row << 32 | col);
+                      }
+                    }
+                  }
+                  return;
+                }
+                for (int t = Math.max(0, s - 1); t <= Math.min(stripes - 1, s + 1); t++) {
+                  LongList source = last[t];
+                  for (int i = 0; i < source.size; i++) {
+                    int row = (int) (source.data[i] >>> 32);
+                    int col = (int) source.data[i];
+                    for (int[] dir : NEIGHBOURS) {
+                      int r = row + dir[0];
+                      int c = col + dir[1];
+                      if (r < from || r >= to || c < 0 || c >= cols) {
+                        continue;
+                      }
+                      if (present[r][c] && seen[r][c] != currentWave && neighbours[r].get(c) < 4) {
+                        seen[r][c] = currentWave;
+                        picked.add((long) r << 32 | c);
+                      }
+                    }
+                  }
+                }
+              });
+
+      long waveRemoved = 0;
+      for (LongList picked : next) {
+        waveRemoved += picked.size;
+      }
+      if (waveRemoved == 0) {
+        return total;
+      }
+      total += waveRemoved;
+
+      IntStream.range(0, stripes)
+          .parallel()
+          .forEach(
+              s -> {
+                LongList picked = next[s];
+                for (int i = 0; i < picked.size; i++) {
+                  int row = (int) (picked.data[i] >>> 32);
+                  int col = (int) picked.data[i];
+                  present[row][col] = false;
+                  for (int[] dir : NEIGHBOURS) {
+                    int r = row + dir[0];
+                    int c = col + dir[1];
+                    if (r >= 0 && r < rows && c >= 0 && c < cols) {
+                      neighbours[r].decrementAndGet(c);
+                    }
+                  }
+                }
+              });
+      previous = next;
+      removed = last;
+    }
+  }
+
+  // Part 1 straight from the file with O(width) memory. Rows are read into three reusable
+  // buffers (above, middle, below); once a row is complete the middle row has all its neighbours
+  // and is counted, then the buffers rotate. The last row is counted against an empty row below.
+  static long forkLiftRollsStreaming(Path path) throws IOException {
+    byte[][] window = {new byte[256], new byte[256], new byte[256]};
+    int[] lengths = new int[3];
+    // index into window of the row being read; the two before it are middle and above
+    int reading = 0;
+    int rowsRead = 0;
+    long total = 0;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          byte b = buffer.get();
+          if (b == '\n') {
+            rowsRead++;
+            if (rowsRead >= 2) {
+              total += countStreamedRow(window, lengths, reading);
+            }
+            reading = (reading + 1) % 3;
+            lengths[reading] = 0;
+          } else if (b != '\r') {
+            if (lengths[reading] == window[reading].length) {
+              window[reading] = Arrays.copyOf(window[reading], lengths[reading] << 1);
             }
+            window[reading][lengths[reading]++] = b;
           }
         }
+        buffer.clear();
       }
-      if (!toBeRemoved.isEmpty()) {
-        totalAccesible += toBeRemoved.size();
-        proceedIteration = true;
-        for (int[] roll : toBeRemoved) {
-          rolls[roll[0]][roll[1]] = '.';
-        }
-        toBeRemoved.clear();
+    }
+    // a last row without a trailing newline
+    if (lengths[reading] > 0) {
+      rowsRead++;
+      if (rowsRead >= 2) {
+        total += countStreamedRow(window, lengths, reading);
       }
-
-    } while (proceedIteration);
-
-    return totalAccesible;
+      reading = (reading + 1) % 3;
+      lengths[reading] = 0;
+    }
+    // the final row has nothing below it; the row being read is empty at this point
+    if (rowsRead >= 1) {
+      total += countStreamedRow(window, lengths, reading);
+    }
+    return total;
   }
 
-  private static boolean countValid(char[][] rolls, int row, int col, int rows, int cols) {
-    int[][] dirs = {{0, 1}, {1, 0}, {0, -1}, {-1, 0}, {-1, -1}, {1, -1}, {-1, 1}, {1, 1}};
-    int count = 0;
-    for (int[] dir : dirs) {
-      int r = row + dir[0];
-      int c = col + dir[1];
-      if (r >= 0 && r < rows && c >= 0 && c < cols && rolls[r][c] == '@') {
-        count++;
+  // Accessible rolls in the middle row of the window, the row just before below
+  private static long countStreamedRow(byte[][] window, int[] lengths, int below) {
+    int middle = (below + 2) % 3;
+    int above = (below + 1) % 3;
+    byte[] row = window[middle];
+    long accessible = 0;
+    for (int col = 0; col < lengths[middle]; col++) {
+      if (row[col] != '@') {
+        continue;
+      }
+      int count = 0;
+      for (int c = col - 1; c <= col + 1; c++) {
+        if (c < 0) {
+          continue;
+        }
+        if (c < lengths[above] && window[above][c] == '@') {
+          count++;
+        }
+        if (c != col && c < lengths[middle] && row[c] == '@') {
+          count++;
+        }
+        if (c < lengths[below] && window[below][c] == '@') {
+          count++;
+        }
+      }
+      if (count < 4) {
+        accessible++;
       }
     }
-    return count < 4;
+    return accessible;
   }
 
   public static void main(String[] args) {
@@ -1,8 +1,14 @@
-import java.io.FileNotFoundException;
-import java.io.InputStream;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * --- Day 1: Secret Entrance --- The Elves have good news and bad news.
@@ -160,20 +166,358 @@ public class SecretEntrance {
     return password;
   }
 
-  public static void main(String[] args) throws FileNotFoundException {
-    List<Integer> documents = new ArrayList<>();
-    ClassLoader loader = Thread.currentThread().getContextClassLoader();
-    InputStream is = loader.getResourceAsStream("secretentrance.txt");
-    Scanner scanner = new Scanner(is);
-    while (scanner.hasNextLine()) {
-      String line = scanner.nextLine();
-      char direction = line.charAt(0);
-      int rotations = Integer.parseInt(line.substring(1));
-      if (direction == 'L') {
-        rotations = -rotations;
+  // Same loops as above over a primitive array, so a mapped input never has to be boxed
+  static int buildPassword(int[] rotations) {
+    if (rotations == null || rotations.length == 0) {
+      return 0;
+    }
+    int dial = 50;
+    int password = 0;
+    for (int rotation : rotations) {
+      dial = (dial + rotation) % 100;
+      if (dial < 0) {
+        dial += 100;
+      }
+      if (dial == 0) {
+        password++;
+      }
+    }
+    return password;
+  }
+
+  static int buildPassword2(int[] rotations) {
+    if (rotations == null || rotations.length == 0) {
+      return 0;
+    }
+    int dial = 50;
+    int password = 0;
+    for (int rotation : rotations) {
+      if (rotation > 0) {
+        password += (dial + rotation) / 100;
+        dial = (dial + rotation) % 100;
+      } else if (rotation < 0) {
+        password += Math.floorDiv(dial - 1, 100) - Math.floorDiv(dial + rotation - 1, 100);
+        dial = (dial + rotation) % 100;
+        if (dial < 0) dial += 100;
+      }
+    }
+    return password;
+  }
+
+  // Keeps the dial and both running passwords for a live feed of rotations. Every append is the
+  // single loop step from buildPassword/buildPassword2, so the counts match a full rerun. They are
+  // kept as longs because a live feed has no end and an int total would eventually wrap.
+  static class DialTracker {
+    private int dial = 50;
+    private long password;
+    private long password2;
+    private long applied;
+
+    // Immutable copy of the tracker state; restoring one lets a replay start from here
+    static class Checkpoint {
+      final int dial;
+      final long password;
+      final long password2;
+      final long applied;
+
+      public Checkpoint(int dial, long password, long password2, long applied) {
+        this.dial = dial;
+        this.password = password;
+        this.password2 = password2;
+        this.applied = applied;
+      }
+    }
+
+    public void append(int rotation) {
+      if (rotation > 0) {
+        password2 += (dial + rotation) / 100;
+      } else if (rotation < 0) {
+        password2 += Math.floorDiv(dial - 1, 100) - Math.floorDiv(dial + rotation - 1, 100);
+      }
+      dial = (dial + rotation) % 100;
+      if (dial < 0) {
+        dial += 100;
+      }
+      if (dial == 0) {
+        password++;
+      }
+      applied++;
+    }
+
+    public int getDial() {
+      return dial;
+    }
+
+    public long getPassword() {
+      return password;
+    }
+
+    public long getPassword2() {
+      return password2;
+    }
+
+    // Number of rotations folded into the counts, i.e. where a replay should resume
+    public long getApplied() {
+      return applied;
+    }
+
+    public Checkpoint checkpoint() {
+      return new Checkpoint(dial, password, password2, applied);
+    }
+
+    public void restore(Checkpoint checkpoint) {
+      dial = checkpoint.dial;
+      password = checkpoint.password;
+      password2 = checkpoint.password2;
+      applied = checkpoint.applied;
+    }
+  }
+
+  // Runs one rotation stream against many dials at once. The dials are kept as parallel arrays
+  // (modulus, position, both counts) and each rotation is applied to every dial in an inner lane
+  // loop over those arrays. The sign of the rotation is tested once per rotation, so the lane
+  // loop itself is branch-free straight-line arithmetic with no dependency between lanes. The
+  // per-lane long divisions keep the JIT from emitting SIMD for it, but independent lanes still
+  // overlap in the pipeline instead of waiting on one dial's serial chain.
+  static class DialBatch {
+    private final long[] moduli;
+    private final long[] dials;
+    private final long[] passwords;
+    private final long[] passwords2;
+
+    public DialBatch(int[] moduli, int[] starts) {
+      if (moduli.length != starts.length) {
+        throw new IllegalArgumentException("moduli and starts must have the same length");
+      }
+      this.moduli = new long[moduli.length];
+      this.dials = new long[moduli.length];
+      for (int i = 0; i < moduli.length; i++) {
+        if (moduli[i] <= 0 || starts[i] < 0 || starts[i] >= moduli[i]) {
+          throw new IllegalArgumentException(
+              "dial " + i + " has start " + starts[i] + " outside modulus " + moduli[i]);
+        }
+        this.moduli[i] = moduli[i];
+        this.dials[i] = starts[i];
+      }
+      this.passwords = new long[moduli.length];
+      this.passwords2 = new long[moduli.length];
+    }
+
+    // Can be called repeatedly with consecutive pieces of the same stream
+    public void apply(int[] rotations) {
+      int lanes = dials.length;
+      for (int rotation : rotations) {
+        // same crossing arithmetic as buildPassword2 with 100 replaced by the modulus
+        if (rotation > 0) {
+          for (int j = 0; j < lanes; j++) {
+            long moved = dials[j] + rotation;
+            passwords2[j] += moved / moduli[j];
+            long dial = moved % moduli[j];
+            dials[j] = dial;
+            passwords[j] += dial == 0 ? 1 : 0;
+          }
+        } else if (rotation < 0) {
+          for (int j = 0; j < lanes; j++) {
+            long moved = dials[j] + rotation;
+            passwords2[j] +=
+                Math.floorDiv(dials[j] - 1, moduli[j]) - Math.floorDiv(moved - 1, moduli[j]);
+            long dial = Math.floorMod(moved, moduli[j]);
+            dials[j] = dial;
+            passwords[j] += dial == 0 ? 1 : 0;
+          }
+        } else {
+          for (int j = 0; j < lanes; j++) {
+            passwords[j] += dials[j] == 0 ? 1 : 0;
+          }
+        }
+      }
+    }
+
+    public long[] getPasswords() {
+      return passwords.clone();
+    }
+
+    public long[] getPasswords2() {
+      return passwords2.clone();
+    }
+  }
+
+  // Parses "L68"/"R48" lines straight from the mapped bytes into a growable int[].
+  // The parser state lives outside the window loop so a line may straddle two windows.
+  static int[] loadRotations(Path path) throws IOException {
+    int[] rotations = new int[1024];
+    int count = 0;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      boolean negative = false;
+      boolean inNumber = false;
+      int value = 0;
+      for (long offset = 0; offset < size; offset += MappedRegions.MAX_WINDOW) {
+        MappedByteBuffer buffer = MappedRegions.mapWindow(channel, offset, size);
+        while (buffer.hasRemaining()) {
+          byte b = buffer.get();
+          if (b >= '0' && b <= '9') {
+            value = value * 10 + (b - '0');
+            inNumber = true;
+          } else if (b == 'L' || b == 'R') {
+            negative = b == 'L';
+          } else if (b == '\n' && inNumber) {
+            if (count == rotations.length) {
+              rotations = Arrays.copyOf(rotations, count << 1);
+            }
+            rotations[count++] = negative ? -value : value;
+            value = 0;
+            inNumber = false;
+          }
+        }
+      }
+      // last line without a trailing newline
+      if (inNumber) {
+        if (count == rotations.length) {
+          rotations = Arrays.copyOf(rotations, count + 1);
+        }
+        rotations[count++] = negative ? -value : value;
       }
-      documents.add(rotations);
     }
+    return Arrays.copyOf(rotations, count);
+  }
+
+  // Rotations per leaf task; below this the fork/join overhead outweighs the scan itself
+  private static final int PARALLEL_CHUNK = 1 << 16;
+
+  // Summary of a run of rotations that is valid for every one of the 100 start positions.
+  // The net shift is independent of the start, and zeroHits/zeroClicks hold the part 1 and part 2
+  // counts the run produces when the dial enters it pointing at index s.
+  static class DialSegment {
+    int shift;
+    long[] zeroHits = new long[100];
+    long[] zeroClicks = new long[100];
+
+    static DialSegment of(int[] rotations, int from, int to) {
+      DialSegment segment = new DialSegment();
+      // We walk the unwrapped position p = start + prefix. Writing p = 100 * q + r, every floor
+      // division in buildPassword2 is q + (start + r >= 100 ? 1 : 0), so the q parts add up to a
+      // start-independent base and the carries only depend on the remainder r.
+      int[] endRemainders = new int[100];
+      long[] carryWeights = new long[100];
+      long base = 0;
+      long prefix = 0;
+      for (int i = from; i < to; i++) {
+        int rotation = rotations[i];
+        long next = prefix + rotation;
+        if (rotation > 0) {
+          base += Math.floorDiv(next, 100) - Math.floorDiv(prefix, 100);
+          carryWeights[Math.floorMod(next, 100)]++;
+          carryWeights[Math.floorMod(prefix, 100)]--;
+        } else if (rotation < 0) {
+          base += Math.floorDiv(prefix - 1, 100) - Math.floorDiv(next - 1, 100);
+          carryWeights[Math.floorMod(prefix - 1, 100)]++;
+          carryWeights[Math.floorMod(next - 1, 100)]--;
+        }
+        prefix = next;
+        endRemainders[Math.floorMod(prefix, 100)]++;
+      }
+      segment.shift = Math.floorMod(prefix, 100);
+
+      // start s picks up a carry for every remainder r >= 100 - s, so walk s upwards and add
+      // one more remainder bucket each time
+      long carries = 0;
+      for (int start = 0; start < 100; start++) {
+        if (start > 0) {
+          carries += carryWeights[100 - start];
+        }
+        segment.zeroHits[start] = endRemainders[(100 - start) % 100];
+        segment.zeroClicks[start] = base + carries;
+      }
+      return segment;
+    }
+
+    // Runs this segment first and then the other one
+    DialSegment then(DialSegment other) {
+      DialSegment combined = new DialSegment();
+      combined.shift = (shift + other.shift) % 100;
+      for (int start = 0; start < 100; start++) {
+        int middle = (start + shift) % 100;
+        combined.zeroHits[start] = zeroHits[start] + other.zeroHits[middle];
+        combined.zeroClicks[start] = zeroClicks[start] + other.zeroClicks[middle];
+      }
+      return combined;
+    }
+  }
+
+  static class DialSegmentTask extends RecursiveTask<DialSegment> {
+    private static final long serialVersionUID = 1L;
+
+    private final int[] rotations;
+    private final int from;
+    private final int to;
+
+    public DialSegmentTask(int[] rotations, int from, int to) {
+      this.rotations = rotations;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected DialSegment compute() {
+      if (to - from <= PARALLEL_CHUNK) {
+        return DialSegment.of(rotations, from, to);
+      }
+      int mid = (from + to) >>> 1;
+      DialSegmentTask left = new DialSegmentTask(rotations, from, mid);
+      left.fork();
+      DialSegment right = new DialSegmentTask(rotations, mid, to).compute();
+      return left.join().then(right);
+    }
+  }
+
+  private static DialSegment summarize(int[] rotations) {
+    return ForkJoinPool.commonPool().invoke(new DialSegmentTask(rotations, 0, rotations.length));
+  }
+
+  // Same answer as buildPassword, the casts keep int overflow identical to the sequential loop
+  static int buildPasswordParallel(int[] rotations) {
+    if (rotations == null || rotations.length == 0) {
+      return 0;
+    }
+    return (int) summarize(rotations).zeroHits[50];
+  }
+
+  static int buildPassword2Parallel(int[] rotations) {
+    if (rotations == null || rotations.length == 0) {
+      return 0;
+    }
+    return (int) summarize(rotations).zeroClicks[50];
+  }
+
+  // List overloads unbox once up front; the int[] from loadRotations needs no copy at all
+  static int buildPasswordParallel(List<Integer> rotations) {
+    if (rotations == null || rotations.isEmpty()) {
+      return 0;
+    }
+    return buildPasswordParallel(toArray(rotations));
+  }
+
+  static int buildPassword2Parallel(List<Integer> rotations) {
+    if (rotations == null || rotations.isEmpty()) {
+      return 0;
+    }
+    return buildPassword2Parallel(toArray(rotations));
+  }
+
+  private static int[] toArray(List<Integer> rotations) {
+    int[] array = new int[rotations.size()];
+    int i = 0;
+    for (int rotation : rotations) {
+      array[i++] = rotation;
+    }
+    return array;
+  }
+
+  public static void main(String[] args) throws IOException, URISyntaxException {
+    ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    Path path = Paths.get(loader.getResource("secretentrance.txt").toURI());
+    int[] documents = loadRotations(path);
 
     int password = buildPassword(documents);
     int password2 = buildPassword2(documents);